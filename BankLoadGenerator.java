@@ -0,0 +1,446 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+
+// End-to-end workload driver for BankManager.
+//
+// Builds a book of accounts with some transaction history, then hammers it from
+// several threads with a teller/batch style mix of operations for a fixed time and
+// prints throughput, latency percentiles, GC pauses and heap usage.
+//
+// Usage: java BankLoadGenerator [key=value ...]
+//   accounts=10000      accounts created before the run
+//   history=20          deposit/withdraw entries pre-loaded per account
+//   hotAccounts=0.01    fraction of accounts that are "hot"
+//   hotTraffic=0.8      fraction of per-account traffic that goes to hot accounts
+//   threads=8           worker threads
+//   warmup=5            warm-up seconds (not measured)
+//   duration=30         measured seconds
+//   mix=add:2,deposit:30,withdraw:25,undo:5,find:35,delete:3
+public class BankLoadGenerator {
+
+    // Operations the generator can issue, in the order they are reported
+    enum Operation { ADD, DEPOSIT, WITHDRAW, UNDO, FIND, DELETE }
+
+    private final int accountCount;
+    private final int historyDepth;
+    private final double hotAccountFraction;
+    private final double hotTrafficFraction;
+    private final int threadCount;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int[] mixWeights = new int[Operation.values().length];
+    private int mixTotal;
+
+    private final BankManager bankManager = new BankManager();
+    private final AtomicInteger nextAccountNumber = new AtomicInteger(1);
+    private int[] hotAccounts;     // hot account numbers, spread across the book
+    private boolean[] isHot;       // indexed by account number, initial book only
+
+    public BankLoadGenerator(Map<String, String> options) {
+        accountCount = Integer.parseInt(options.getOrDefault("accounts", "10000"));
+        historyDepth = Integer.parseInt(options.getOrDefault("history", "20"));
+        hotAccountFraction = Double.parseDouble(options.getOrDefault("hotAccounts", "0.01"));
+        hotTrafficFraction = Double.parseDouble(options.getOrDefault("hotTraffic", "0.8"));
+        threadCount = Integer.parseInt(options.getOrDefault("threads", "8"));
+        warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        parseMix(options.getOrDefault("mix", "add:2,deposit:30,withdraw:25,undo:5,find:35,delete:3"));
+
+        if (accountCount < 1 || threadCount < 1 || durationSeconds < 1 || mixTotal <= 0) {
+            throw new IllegalArgumentException("accounts, threads, duration and mix must all be positive");
+        }
+        if (!(hotAccountFraction > 0 && hotAccountFraction <= 1)) {
+            throw new IllegalArgumentException("hotAccounts must be in (0, 1], got " + hotAccountFraction);
+        }
+        if (!(hotTrafficFraction >= 0 && hotTrafficFraction <= 1)) {
+            throw new IllegalArgumentException("hotTraffic must be in [0, 1], got " + hotTrafficFraction);
+        }
+        if (historyDepth < 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("history and warmup must not be negative");
+        }
+    }
+
+    private void parseMix(String mix) {
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + entry);
+            }
+            Operation operation = Operation.valueOf(parts[0].trim().toUpperCase());
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weights must not be negative: " + entry);
+            }
+            mixWeights[operation.ordinal()] = weight;
+            mixTotal += weight;
+        }
+    }
+
+
+    // Create the initial book: accountCount accounts, each with historyDepth entries
+    private void populate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < accountCount; i++) {
+            int accountNumber = nextAccountNumber.getAndIncrement();
+            Account account = bankManager.addAccount(accountNumber, "Customer " + accountNumber, 1000 + random.nextInt(9000));
+            for (int h = 0; h < historyDepth; h++) {
+                if (random.nextBoolean()) {
+                    account.deposit(1 + random.nextInt(500));
+                } else {
+                    account.withdraw(1 + random.nextInt(500));
+                }
+            }
+        }
+
+        // Choose the hot set at random so hot lookups land all over BankManager's list,
+        // not just at its head where a linear findAccount would stop early
+        int[] shuffled = new int[accountCount];
+        for (int i = 0; i < accountCount; i++) {
+            shuffled[i] = i + 1;
+        }
+        for (int i = accountCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = shuffled[i];
+            shuffled[i] = shuffled[j];
+            shuffled[j] = swap;
+        }
+        hotAccounts = Arrays.copyOf(shuffled, Math.max(1, (int) (accountCount * hotAccountFraction)));
+        isHot = new boolean[accountCount + 1];
+        for (int accountNumber : hotAccounts) {
+            isHot[accountNumber] = true;
+        }
+    }
+
+    private boolean isHot(int accountNumber) {
+        return accountNumber <= accountCount && isHot[accountNumber];
+    }
+
+    // Pick an account number, sending hotTrafficFraction of requests to the hot accounts.
+    // Numbers above the initial book may have been added or deleted since, so lookups can miss.
+    private int pickAccountNumber(ThreadLocalRandom random) {
+        if (random.nextDouble() < hotTrafficFraction) {
+            return hotAccounts[random.nextInt(hotAccounts.length)];
+        }
+        return 1 + random.nextInt(Math.max(1, nextAccountNumber.get() - 1));
+    }
+
+    private Operation pickOperation(ThreadLocalRandom random) {
+        int roll = random.nextInt(mixTotal);
+        for (Operation operation : Operation.values()) {
+            roll -= mixWeights[operation.ordinal()];
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return Operation.FIND;
+    }
+
+    // Run a single operation; returns false when it was rejected (missing account, insufficient funds, ...)
+    private boolean execute(Operation operation, ThreadLocalRandom random) {
+        switch (operation) {
+            case ADD: {
+                int accountNumber = nextAccountNumber.getAndIncrement();
+                bankManager.addAccount(accountNumber, "Customer " + accountNumber, 100 + random.nextInt(900));
+                return true;
+            }
+            case DEPOSIT: {
+                Account account = bankManager.findAccount(pickAccountNumber(random));
+                if (account == null) {
+                    return false;
+                }
+                account.deposit(1 + random.nextInt(500));
+                return true;
+            }
+            case WITHDRAW: {
+                Account account = bankManager.findAccount(pickAccountNumber(random));
+                return account != null && account.withdraw(1 + random.nextInt(500));
+            }
+            case UNDO: {
+                Account account = bankManager.findAccount(pickAccountNumber(random));
+                return account != null && account.undoLastTransaction();
+            }
+            case FIND:
+                return bankManager.findAccount(pickAccountNumber(random)) != null;
+            case DELETE: {
+                // Never delete the hot set, otherwise the skew disappears as the run goes on
+                if (hotAccounts.length >= nextAccountNumber.get() - 1) {
+                    return false;
+                }
+                int accountNumber;
+                do {
+                    accountNumber = 1 + random.nextInt(nextAccountNumber.get() - 1);
+                } while (isHot(accountNumber));
+                return bankManager.deleteAccount(accountNumber);
+            }
+            default:
+                throw new IllegalStateException("Unknown operation: " + operation);
+        }
+    }
+
+
+    public void run() throws InterruptedException {
+        System.out.printf("Populating %d accounts with %d history entries each...%n", accountCount, historyDepth);
+        long populateStart = System.nanoTime();
+        populate();
+        System.out.printf("Populated in %.1f s%n", (System.nanoTime() - populateStart) / 1e9);
+
+        GcPauseRecorder gcRecorder = new GcPauseRecorder();
+        final long measureStart = System.nanoTime() + warmupSeconds * 1_000_000_000L;
+        final long measureEnd = measureStart + durationSeconds * 1_000_000_000L;
+
+        final Worker[] workers = new Worker[threadCount];
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(measureStart, measureEnd, done);
+            Thread thread = new Thread(workers[i], "load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        System.out.printf("Running %d threads: %d s warm-up, %d s measured%n", threadCount, warmupSeconds, durationSeconds);
+        long peakHeapUsed = 0;
+        boolean recording = false;
+        while (!done.await(200, TimeUnit.MILLISECONDS)) {
+            if (!recording && System.nanoTime() >= measureStart) {
+                gcRecorder.start();
+                recording = true;
+            }
+            if (recording) {
+                peakHeapUsed = Math.max(peakHeapUsed, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+            }
+        }
+        gcRecorder.stop();
+
+        report(workers, gcRecorder, peakHeapUsed);
+    }
+
+    private void report(Worker[] workers, GcPauseRecorder gcRecorder, long peakHeapUsed) {
+        Operation[] operations = Operation.values();
+        LatencyHistogram total = new LatencyHistogram();
+        long totalRejected = 0;
+
+        System.out.println();
+        System.out.printf("%-9s %12s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "ops/s", "rejected", "p50 us", "p99 us", "p99.9 us", "max us");
+        for (Operation operation : operations) {
+            LatencyHistogram merged = new LatencyHistogram();
+            long rejected = 0;
+            for (Worker worker : workers) {
+                merged.add(worker.histograms[operation.ordinal()]);
+                rejected += worker.rejected[operation.ordinal()];
+            }
+            total.add(merged);
+            totalRejected += rejected;
+            printRow(operation.name().toLowerCase(), merged, rejected);
+        }
+        printRow("all", total, totalRejected);
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.println();
+        System.out.printf("Accounts at end:    %d%n", bankManager.getAllAccounts().size());
+        System.out.printf("GC pauses:          %d, total %d ms, max %d ms (%.2f%% of run)%n",
+                gcRecorder.pauseCount.get(), gcRecorder.totalPauseMillis.get(), gcRecorder.maxPauseMillis.get(),
+                100.0 * gcRecorder.totalPauseMillis.get() / (durationSeconds * 1000.0));
+        System.out.printf("Heap peak used:     %.1f MB%n", peakHeapUsed / 1048576.0);
+        System.out.printf("Heap live after GC: %.1f MB%n", liveHeapAfterGc() / 1048576.0);
+        System.out.printf("Heap committed/max: %.1f MB / %.1f MB%n", heap.getCommitted() / 1048576.0, heap.getMax() / 1048576.0);
+    }
+
+    private void printRow(String label, LatencyHistogram histogram, long rejected) {
+        System.out.printf("%-9s %12d %10.0f %10d %10.1f %10.1f %10.1f %10.1f%n",
+                label, histogram.count(), histogram.count() / (double) durationSeconds, rejected,
+                histogram.percentile(50) / 1000.0, histogram.percentile(99) / 1000.0,
+                histogram.percentile(99.9) / 1000.0, histogram.max() / 1000.0);
+    }
+
+    // Live set: force a full collection (after measurement, so it is not counted as a pause) and read what is left.
+    // Pool collection usage alone is stale under G1, whose old generation only updates on mixed or full GCs.
+    private static long liveHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+
+    // One load thread; keeps its own histograms so recording never contends
+    private class Worker implements Runnable {
+        private final long measureStart;
+        private final long measureEnd;
+        private final CountDownLatch done;
+        final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+        final long[] rejected = new long[Operation.values().length];
+
+        Worker(long measureStart, long measureEnd, CountDownLatch done) {
+            this.measureStart = measureStart;
+            this.measureEnd = measureEnd;
+            this.done = done;
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long now = System.nanoTime();
+                while (now < measureEnd) {
+                    Operation operation = pickOperation(random);
+                    boolean accepted = execute(operation, random);
+                    long finished = System.nanoTime();
+                    if (now >= measureStart) {
+                        histograms[operation.ordinal()].record(finished - now);
+                        if (!accepted) {
+                            rejected[operation.ordinal()]++;
+                        }
+                    }
+                    now = finished;
+                }
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+
+    // Log-linear latency histogram in nanoseconds: 32 sub-buckets per power of two (~3% error)
+    static class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+        private long count;
+        private long max;
+
+        void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            counts[indexOf(nanos)]++;
+            count++;
+            if (nanos > max) {
+                max = nanos;
+            }
+        }
+
+        void add(LatencyHistogram other) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += other.counts[i];
+            }
+            count += other.count;
+            max = Math.max(max, other.max);
+        }
+
+        long count() { return count; }
+        long max() { return max; }
+
+        // Upper bound of the bucket holding the given percentile
+        long percentile(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(count * percent / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(max, upperBoundOf(i));
+                }
+            }
+            return max;
+        }
+
+        private static int indexOf(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+            return (shift + 1) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+
+
+    // Collects stop-the-world pause durations from the JVM's GC notifications
+    static class GcPauseRecorder implements NotificationListener {
+        private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+
+        final AtomicLong pauseCount = new AtomicLong();
+        final AtomicLong totalPauseMillis = new AtomicLong();
+        final AtomicLong maxPauseMillis = new AtomicLong();
+        private final List<NotificationEmitter> emitters = new ArrayList<>();
+
+        void start() {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (gc instanceof NotificationEmitter) {
+                    NotificationEmitter emitter = (NotificationEmitter) gc;
+                    emitter.addNotificationListener(this, null, null);
+                    emitters.add(emitter);
+                }
+            }
+        }
+
+        void stop() {
+            for (NotificationEmitter emitter : emitters) {
+                try {
+                    emitter.removeNotificationListener(this);
+                } catch (Exception e) {
+                    // Already gone, nothing to clean up
+                }
+            }
+            emitters.clear();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!GC_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            CompositeData info = (CompositeData) notification.getUserData();
+            String gcName = (String) info.get("gcName");
+            // Concurrent cycles run alongside the application and are not pauses
+            if (gcName.contains("Concurrent") || gcName.contains("Cycles")) {
+                return;
+            }
+            long duration = (Long) ((CompositeData) info.get("gcInfo")).get("duration");
+            pauseCount.incrementAndGet();
+            totalPauseMillis.addAndGet(duration);
+            maxPauseMillis.accumulateAndGet(duration, Math::max);
+        }
+    }
+
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                System.err.println("Arguments must be key=value, got: " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new BankLoadGenerator(options).run();
+    }
+}
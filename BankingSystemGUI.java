@@ -4,8 +4,30 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 
 // Transaction class to represent individual transactions
@@ -20,6 +42,13 @@ class Transaction {
         this.timestamp = new Date();
     }
 
+    // Used when paging spilled history back in
+    Transaction(String type, double amount, Date timestamp) {
+        this.type = type;
+        this.amount = amount;
+        this.timestamp = timestamp;
+    }
+
     public String getType() { return type; }
     public double getAmount() { return amount; }
     public Date getTimestamp() { return timestamp; }
@@ -31,69 +60,1036 @@ class Transaction {
 }
 
 
+// Append-only store for spilled transaction history. Each segment is a deflate-compressed
+// block packed into a large memory-mapped chunk file, so a handful of mappings serves
+// every account instead of one file per segment.
+class HistorySegmentStore {
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int COMPACT_LIVE_PERCENT = 25; // compact a full chunk once this little of it is live
+    private static HistorySegmentStore defaultStore;
+
+    // A compressed run of transactions inside a chunk; compaction may move it (chunk/offset guarded by the store)
+    static class Segment {
+        private Chunk chunk;
+        private int offset;
+        private final int length;
+        private final int count;
+
+        Segment(Chunk chunk, int offset, int length, int count) {
+            this.chunk = chunk;
+            this.offset = offset;
+            this.length = length;
+            this.count = count;
+        }
+
+        int getCount() { return count; }
+    }
+
+    private static class Chunk {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private final Set<Segment> segments = new HashSet<>(); // live segments, for compaction
+        private int used;
+        private int live;
+
+        Chunk(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private Chunk current;
+    private int chunkCounter;
+    private final List<Path> pendingDeletes = new ArrayList<>();
+
+    public HistorySegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    // Shared store in a per-process directory (under -Dbanking.history.dir if set), removed on exit.
+    // Each process gets its own directory so two JVMs never map each other's chunks.
+    static synchronized HistorySegmentStore getDefault() throws IOException {
+        if (defaultStore == null) {
+            String configured = System.getProperty("banking.history.dir");
+            Path directory = configured != null
+                    ? Files.createTempDirectory(Files.createDirectories(Paths.get(configured)), "banking-history")
+                    : Files.createTempDirectory("banking-history");
+            HistorySegmentStore store = new HistorySegmentStore(directory);
+            Runtime.getRuntime().addShutdownHook(new Thread(store::deleteFiles, "history-cleanup"));
+            defaultStore = store;
+        }
+        return defaultStore;
+    }
+
+    // Compression runs outside the store lock; only space allocation and the copy are serialized
+    public Segment write(List<Transaction> entries) throws IOException {
+        byte[] block = compress(entries);
+        if (block.length > CHUNK_SIZE) {
+            throw new IOException("History segment too large: " + block.length + " bytes");
+        }
+        synchronized (this) {
+            Segment segment = new Segment(null, 0, block.length, entries.size());
+            append(segment, block);
+            return segment;
+        }
+    }
+
+    // Inflate straight out of the mapping; the page cache does the paging in
+    public List<Transaction> read(Segment segment) {
+        ByteBuffer source;
+        Path file;
+        synchronized (this) {
+            // Chunks are append-only and a compacted chunk's mapping stays valid while referenced,
+            // so once located the bytes can be read without the lock
+            source = segment.chunk.buffer.duplicate();
+            source.limit(segment.offset + segment.length);
+            source.position(segment.offset);
+            file = segment.chunk.file;
+        }
+        int rawLength = source.getInt();
+        byte[] raw = new byte[rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(source);
+            int filled = 0;
+            while (filled < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, filled, rawLength - filled);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                filled += n;
+            }
+            if (filled != rawLength) {
+                throw new IllegalStateException("Truncated history segment in " + file);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt history segment in " + file, e);
+        } finally {
+            inflater.end();
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            List<Transaction> entries = new ArrayList<>(segment.count);
+            for (int i = 0; i < segment.count; i++) {
+                String type = in.readUTF();
+                double amount = in.readDouble();
+                Date timestamp = new Date(in.readLong());
+                entries.add(new Transaction(type, amount, timestamp));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt history segment in " + file, e);
+        }
+    }
+
+    // Drop a segment. A full chunk is deleted once nothing in it is live, and compacted once
+    // little is, so disk use follows the live history rather than everything ever spilled.
+    public synchronized void free(Segment segment) {
+        Chunk chunk = segment.chunk;
+        chunk.segments.remove(segment);
+        chunk.live -= segment.length;
+        if (chunk == current) {
+            return;
+        }
+        if (chunk.live == 0) {
+            deleteChunkFile(chunk.file);
+        } else if (chunk.live * 100L <= (long) chunk.used * COMPACT_LIVE_PERCENT) {
+            try {
+                compact(chunk);
+            } catch (IOException e) {
+                // Keep the chunk as it is; it is still readable
+            }
+        }
+    }
+
+    // Copy the chunk's live segments to the current chunk, then drop the old file
+    private void compact(Chunk chunk) throws IOException {
+        for (Segment segment : new ArrayList<>(chunk.segments)) {
+            byte[] block = new byte[segment.length];
+            ByteBuffer source = chunk.buffer.duplicate();
+            source.position(segment.offset);
+            source.get(block);
+            append(segment, block);
+            chunk.segments.remove(segment);
+            chunk.live -= segment.length;
+        }
+        deleteChunkFile(chunk.file);
+    }
+
+    // Place a block at the end of the current chunk, starting a new chunk when it is full
+    private void append(Segment segment, byte[] block) throws IOException {
+        if (current == null || current.used + block.length > CHUNK_SIZE) {
+            Chunk previous = current;
+            current = newChunk();
+            if (previous != null && previous.live == 0) {
+                deleteChunkFile(previous.file);
+            }
+        }
+        ByteBuffer target = current.buffer.duplicate();
+        target.position(current.used);
+        target.put(block);
+        segment.chunk = current;
+        segment.offset = current.used;
+        current.segments.add(segment);
+        current.used += block.length;
+        current.live += block.length;
+    }
+
+    // Windows refuses to delete a file that is still mapped, and a mapping only goes away
+    // once its buffer is garbage collected, so failed deletes are retried on the next chunk
+    private void deleteChunkFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            pendingDeletes.add(file);
+        }
+    }
+
+    private void retryPendingDeletes() {
+        for (Iterator<Path> it = pendingDeletes.iterator(); it.hasNext(); ) {
+            try {
+                Files.deleteIfExists(it.next());
+                it.remove();
+            } catch (IOException e) {
+                // Still mapped; try again later or at shutdown
+            }
+        }
+    }
+
+    private Chunk newChunk() throws IOException {
+        retryPendingDeletes();
+        Path file = directory.resolve(String.format("segments-%05d.dat", chunkCounter++));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return new Chunk(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK_SIZE));
+        }
+    }
+
+    private static byte[] compress(List<Transaction> entries) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(entries.size() * 24);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            for (Transaction transaction : entries) {
+                out.writeUTF(transaction.getType());
+                out.writeDouble(transaction.getAmount());
+                out.writeLong(transaction.getTimestamp().getTime());
+            }
+        }
+        byte[] input = raw.toByteArray();
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(input.length / 2 + 16);
+        try (DataOutputStream header = new DataOutputStream(block)) {
+            header.writeInt(input.length);
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                block.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        return block.toByteArray();
+    }
+
+    private void deleteFiles() {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segments-*.dat")) {
+            for (Path file : files) {
+                deleteChunkFile(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Best effort on shutdown
+        }
+    }
+}
+
+
+// Transaction history of one account. The most recent entries stay on the heap (enough
+// for undo and the first page of the history panel); older ones are spilled in fixed-size
+// segments to the HistorySegmentStore and paged back in when a query reaches them.
+class TransactionHistory {
+    static final int HOT_LIMIT = 64;
+    static final int SEGMENT_SIZE = 256;
+
+    private final ArrayList<Transaction> hot = new ArrayList<>(); // oldest first
+    private final ArrayList<HistorySegmentStore.Segment> segments = new ArrayList<>(); // oldest first
+    private int spilledCount;
+    private boolean spillDisabled;
+
+    // Last segment decoded by a query, so paging through old history decodes each segment once
+    private HistorySegmentStore.Segment cachedSegment;
+    private List<Transaction> cachedEntries;
+
+    public synchronized void push(Transaction transaction) {
+        hot.add(transaction);
+        if (hot.size() >= HOT_LIMIT + SEGMENT_SIZE && !spillDisabled) {
+            spill();
+        }
+    }
+
+    public synchronized Transaction pop() {
+        if (hot.isEmpty() && !segments.isEmpty()) {
+            reloadNewestSegment();
+        }
+        if (hot.isEmpty()) {
+            throw new EmptyStackException();
+        }
+        return hot.remove(hot.size() - 1);
+    }
+
+    public synchronized Transaction peek() {
+        return get(0);
+    }
+
+    public synchronized int size() {
+        return spilledCount + hot.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public synchronized int getSpilledCount() {
+        return spilledCount;
+    }
+
+    // index 0 is the most recent transaction
+    public synchronized Transaction get(int index) {
+        List<Transaction> page = getRecent(index, 1);
+        if (page.isEmpty()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        return page.get(0);
+    }
+
+    // Up to limit transactions, newest first, skipping the newest offset entries
+    public synchronized List<Transaction> getRecent(int offset, int limit) {
+        List<Transaction> page = new ArrayList<>(Math.min(limit, HOT_LIMIT));
+        int skip = offset;
+        for (int i = hot.size() - 1; i >= 0 && page.size() < limit; i--) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(hot.get(i));
+            }
+        }
+        for (int s = segments.size() - 1; s >= 0 && page.size() < limit; s--) {
+            HistorySegmentStore.Segment segment = segments.get(s);
+            if (skip >= segment.getCount()) {
+                skip -= segment.getCount();
+                continue;
+            }
+            List<Transaction> entries = load(segment);
+            for (int i = entries.size() - 1 - skip; i >= 0 && page.size() < limit; i--) {
+                page.add(entries.get(i));
+            }
+            skip = 0;
+        }
+        return page;
+    }
+
+    // Release every spilled segment; used when the account is deleted
+    public synchronized void discard() {
+        for (HistorySegmentStore.Segment segment : segments) {
+            freeSegment(segment);
+        }
+        segments.clear();
+        spilledCount = 0;
+        hot.clear();
+    }
+
+    private void spill() {
+        List<Transaction> oldest = new ArrayList<>(hot.subList(0, SEGMENT_SIZE));
+        try {
+            segments.add(HistorySegmentStore.getDefault().write(oldest));
+        } catch (IOException e) {
+            // No usable spill directory: keep the history on the heap rather than lose it
+            System.err.println("Transaction history spill disabled: " + e.getMessage());
+            spillDisabled = true;
+            return;
+        }
+        hot.subList(0, SEGMENT_SIZE).clear();
+        spilledCount += SEGMENT_SIZE;
+    }
+
+    private void reloadNewestSegment() {
+        HistorySegmentStore.Segment segment = segments.remove(segments.size() - 1);
+        hot.addAll(0, load(segment));
+        spilledCount -= segment.getCount();
+        freeSegment(segment);
+    }
+
+    private List<Transaction> load(HistorySegmentStore.Segment segment) {
+        if (segment != cachedSegment) {
+            try {
+                cachedEntries = HistorySegmentStore.getDefault().read(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            cachedSegment = segment;
+        }
+        return cachedEntries;
+    }
+
+    private void freeSegment(HistorySegmentStore.Segment segment) {
+        if (segment == cachedSegment) {
+            cachedSegment = null;
+            cachedEntries = null;
+        }
+        try {
+            HistorySegmentStore.getDefault().free(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
+
+
 // Account class to represent bank accounts
 class Account {
     private int accountNumber;
     private String name;
     private double balance;
-    private Stack<Transaction> transactions;
+    private double heldAmount; // reserved by pending authorization holds
+    private Set<AuthorizationHold> pendingHolds; // created on the first hold
+    private boolean closed; // deleted from the book; holds can no longer settle against it
+    private TransactionHistory transactions;
+    private final BalanceEventPublisher events; // null when nobody can observe this account
 
     public Account(int accountNumber, String name, double initialDeposit) {
+        this(accountNumber, name, initialDeposit, null);
+    }
+
+    public Account(int accountNumber, String name, double initialDeposit, BalanceEventPublisher events) {
         this.accountNumber = accountNumber;
         this.name = name;
         this.balance = initialDeposit;
-        this.transactions = new Stack<>();
+        this.transactions = new TransactionHistory();
         this.transactions.push(new Transaction("Initial", initialDeposit));
+        this.events = events;
     }
 
     // Getters and setters
     public int getAccountNumber() { return accountNumber; }
     public String getName() { return name; }
-    public double getBalance() { return balance; }
-    public Stack<Transaction> getTransactions() { return transactions; }
+    public synchronized double getBalance() { return balance; }
+    public synchronized double getHeldAmount() { return heldAmount; }
+    public synchronized double getAvailableBalance() { return balance - heldAmount; }
+    public TransactionHistory getTransactions() { return transactions; }
 
-    public void deposit(double amount) {
+    public synchronized void deposit(double amount) {
         balance += amount;
         transactions.push(new Transaction("Deposit", amount));
+        publish(BalanceEvent.Type.DEPOSIT, amount);
     }
 
-    public boolean withdraw(double amount) {
-        if (amount > balance) {
+    public synchronized boolean withdraw(double amount) {
+        if (amount > balance - heldAmount) {
             return false;
         }
         balance -= amount;
         transactions.push(new Transaction("Withdraw", amount));
+        publish(BalanceEvent.Type.WITHDRAW, amount);
+        return true;
+    }
+
+    // Reserve funds for a hold: lowers the available balance, the ledger balance is untouched
+    synchronized boolean reserve(AuthorizationHold hold) {
+        if (closed || hold.getAmount() > balance - heldAmount) {
+            return false;
+        }
+        heldAmount += hold.getAmount();
+        if (pendingHolds == null) {
+            pendingHolds = new HashSet<>();
+        }
+        pendingHolds.add(hold);
+        publish(BalanceEvent.Type.HOLD_PLACED, hold.getAmount());
         return true;
     }
 
-    public boolean undoLastTransaction() {
+    synchronized void releaseReserved(AuthorizationHold hold, boolean expired) {
+        pendingHolds.remove(hold);
+        heldAmount -= hold.getAmount();
+        publish(expired ? BalanceEvent.Type.HOLD_EXPIRED : BalanceEvent.Type.HOLD_RELEASED, hold.getAmount());
+    }
+
+    // Turn reserved funds into a real debit
+    synchronized void captureReserved(AuthorizationHold hold) {
+        pendingHolds.remove(hold);
+        heldAmount -= hold.getAmount();
+        balance -= hold.getAmount();
+        transactions.push(new Transaction("Capture", hold.getAmount()));
+        publish(BalanceEvent.Type.CAPTURE, hold.getAmount());
+    }
+
+    synchronized List<AuthorizationHold> getPendingHolds() {
+        return pendingHolds == null ? new ArrayList<>() : new ArrayList<>(pendingHolds);
+    }
+
+    synchronized boolean isClosed() { return closed; }
+
+    synchronized void close() { closed = true; }
+
+    public synchronized boolean undoLastTransaction() {
         if (transactions.size() <= 1) { // Can't undo initial deposit
             return false;
         }
-        Transaction lastTransaction = transactions.pop();
+        Transaction lastTransaction = transactions.peek();
+        // Funds reserved by pending holds must stay covered, so their deposit can't be taken back
+        if (lastTransaction.getType().equals("Deposit") && balance - lastTransaction.getAmount() < heldAmount) {
+            return false;
+        }
+        transactions.pop();
+        BalanceEvent.Type undoneType;
         if (lastTransaction.getType().equals("Deposit")) {
             balance -= lastTransaction.getAmount();
-        } else if (lastTransaction.getType().equals("Withdraw")) {
+            undoneType = BalanceEvent.Type.DEPOSIT;
+        } else {
             balance += lastTransaction.getAmount();
+            undoneType = lastTransaction.getType().equals("Capture") ? BalanceEvent.Type.CAPTURE : BalanceEvent.Type.WITHDRAW;
+        }
+        publish(BalanceEvent.Type.UNDO, undoneType, lastTransaction.getAmount());
+        return true;
+    }
+
+    // Publish an add/delete for this account under its lock, so it is ordered with the account's other events
+    synchronized void announce(BalanceEvent.Type type, double amount) {
+        publish(type, amount);
+    }
+
+    // Called with the account lock held so events for one account stay in order
+    private void publish(BalanceEvent.Type type, double amount) {
+        publish(type, null, amount);
+    }
+
+    private void publish(BalanceEvent.Type type, BalanceEvent.Type undoneType, double amount) {
+        if (events != null && events.hasSubscribers()) {
+            events.publish(type, undoneType, accountNumber, amount, balance, balance - heldAmount);
+        }
+    }
+}
+
+
+// Card-style authorization hold: funds reserved on an account until captured, released or expired
+class AuthorizationHold {
+    enum State { PENDING, CAPTURED, RELEASED, EXPIRED }
+
+    private final long holdId;
+    private final Account account;
+    private final double amount;
+    private final Date createdAt;
+    private State state = State.PENDING;
+    volatile TimingWheel.Timeout expiry;
+
+    public AuthorizationHold(long holdId, Account account, double amount) {
+        this.holdId = holdId;
+        this.account = account;
+        this.amount = amount;
+        this.createdAt = new Date();
+    }
+
+    public long getHoldId() { return holdId; }
+    public Account getAccount() { return account; }
+    public double getAmount() { return amount; }
+    public Date getCreatedAt() { return createdAt; }
+    public synchronized State getState() { return state; }
+
+    // Move out of PENDING exactly once; capture, release and expiry race through here
+    synchronized boolean settle(State newState) {
+        if (state != State.PENDING) {
+            return false;
+        }
+        state = newState;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Hold #%d: $%.2f (%s)", holdId, amount, getState());
+    }
+}
+
+
+// Hierarchical timing wheel (Varghese & Lauck) for scheduling timeouts.
+// Scheduling and cancelling are O(1); each tick only touches one bucket per level,
+// so millions of pending timeouts cost nothing until they are due.
+class TimingWheel {
+
+    // A scheduled task; also a node in its bucket's doubly-linked list
+    static class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private Timeout prev;
+        private Timeout next;
+        private Bucket bucket;
+
+        Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private static class Bucket {
+        private Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        // Detach and return the whole list
+        Timeout takeAll() {
+            Timeout first = head;
+            head = null;
+            return first;
+        }
+    }
+
+    private final long tickMillis;
+    private final long tickNanos;
+    private final int wheelSize;
+    private final Bucket[][] levels;
+    private final long[] levelSpan; // ticks covered by one bucket at each level
+    private final long horizonTicks;
+    private final long startNanos;
+    private long currentTick;
+    private int pending;
+
+    public TimingWheel(long tickMillis, int wheelSize, int levelCount) {
+        if (tickMillis <= 0 || wheelSize < 2 || levelCount < 1) {
+            throw new IllegalArgumentException("tickMillis, wheelSize and levelCount must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.tickNanos = tickMillis * 1_000_000L;
+        this.wheelSize = wheelSize;
+        this.levels = new Bucket[levelCount][wheelSize];
+        this.levelSpan = new long[levelCount];
+        long span = 1;
+        for (int level = 0; level < levelCount; level++) {
+            levelSpan[level] = span;
+            for (int slot = 0; slot < wheelSize; slot++) {
+                levels[level][slot] = new Bucket();
+            }
+            span *= wheelSize;
+        }
+        this.horizonTicks = span;
+        this.startNanos = System.nanoTime();
+    }
+
+    public long getTickMillis() { return tickMillis; }
+    public synchronized int size() { return pending; }
+
+    public synchronized Timeout schedule(Runnable task, long delayMillis) {
+        // Measure from the real clock, not the last tick, and round up so a timeout never fires early
+        // Saturate instead of overflowing: huge delays just sit parked beyond the horizon
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis));
+        long deadlineNanos = delayNanos > Long.MAX_VALUE - elapsedNanos ? Long.MAX_VALUE : elapsedNanos + delayNanos;
+        long deadlineTick = deadlineNanos / tickNanos + (deadlineNanos % tickNanos == 0 ? 0 : 1);
+        deadlineTick = Math.max(currentTick + 1, deadlineTick);
+        Timeout timeout = new Timeout(task, deadlineTick);
+        place(timeout);
+        pending++;
+        return timeout;
+    }
+
+    public synchronized boolean cancel(Timeout timeout) {
+        if (timeout == null || timeout.bucket == null) {
+            return false;
         }
+        timeout.bucket.remove(timeout);
+        pending--;
         return true;
     }
+
+    // Advance to the wall-clock time and run everything that came due, outside the lock
+    public void advanceClock() {
+        long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+        List<Runnable> expired = new ArrayList<>();
+        synchronized (this) {
+            while (currentTick < targetTick) {
+                currentTick++;
+                // Cascade higher levels whose bucket boundary we just crossed
+                for (int level = 1; level < levels.length && currentTick % levelSpan[level] == 0; level++) {
+                    Bucket bucket = levels[level][(int) ((currentTick / levelSpan[level]) % wheelSize)];
+                    Timeout timeout = bucket.takeAll();
+                    while (timeout != null) {
+                        Timeout next = timeout.next;
+                        if (timeout.deadlineTick <= currentTick) {
+                            timeout.bucket = null;
+                            expired.add(timeout.task);
+                            pending--;
+                        } else {
+                            place(timeout);
+                        }
+                        timeout = next;
+                    }
+                }
+                Timeout timeout = levels[0][(int) (currentTick % wheelSize)].takeAll();
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    timeout.bucket = null;
+                    expired.add(timeout.task);
+                    pending--;
+                    timeout = next;
+                }
+            }
+        }
+        for (Runnable task : expired) {
+            task.run();
+        }
+    }
+
+    // Put a timeout in the lowest level whose range covers its remaining delay
+    private void place(Timeout timeout) {
+        long remaining = timeout.deadlineTick - currentTick;
+        long tick = timeout.deadlineTick;
+        if (remaining >= horizonTicks) {
+            // Beyond the top level: park it as far out as possible, it is re-placed on cascade
+            tick = currentTick + horizonTicks - 1;
+            remaining = horizonTicks - 1;
+        }
+        int level = 0;
+        while (level < levels.length - 1 && remaining >= levelSpan[level + 1]) {
+            level++;
+        }
+        levels[level][(int) ((tick / levelSpan[level]) % wheelSize)].add(timeout);
+    }
+}
+
+
+// A single account mutation, as seen by change-data-capture subscribers
+class BalanceEvent {
+    // HOLD_* events change only the available balance; HOLD_EXPIRED is a release by timeout
+    enum Type { ACCOUNT_ADDED, DEPOSIT, WITHDRAW, CAPTURE, UNDO, ACCOUNT_DELETED, HOLD_PLACED, HOLD_RELEASED, HOLD_EXPIRED }
+
+    private final long sequence;
+    private final Type type;
+    private final Type undoneType; // for UNDO: DEPOSIT, WITHDRAW or CAPTURE; null otherwise
+    private final int accountNumber;
+    private final double amount;
+    private final double balanceAfter;
+    private final double availableAfter;
+    private final Date timestamp;
+
+    public BalanceEvent(long sequence, Type type, Type undoneType, int accountNumber,
+                        double amount, double balanceAfter, double availableAfter) {
+        this.sequence = sequence;
+        this.type = type;
+        this.undoneType = undoneType;
+        this.accountNumber = accountNumber;
+        this.amount = amount;
+        this.balanceAfter = balanceAfter;
+        this.availableAfter = availableAfter;
+        this.timestamp = new Date();
+    }
+
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public Type getUndoneType() { return undoneType; }
+    public int getAccountNumber() { return accountNumber; }
+    public double getAmount() { return amount; }
+    public double getBalanceAfter() { return balanceAfter; }
+    public double getAvailableAfter() { return availableAfter; }
+    public Date getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        String what = undoneType != null ? type + " " + undoneType : type.toString();
+        return String.format("#%d %s account %d: $%.2f (balance $%.2f, available $%.2f)",
+                sequence, what, accountNumber, amount, balanceAfter, availableAfter);
+    }
 }
 
 
-// Bank Management System class
+// In-process publish/subscribe feed of account mutations.
+//
+// Every subscriber gets its own bounded buffer and receives events in batches: each
+// request(n) is n batches, and a slow consumer simply finds more events waiting, up to
+// maxBatchSize, the next time it asks. When a buffer is full the writer waits up to
+// maxBlockMillis (backpressure reaches the teller), then the subscriber is dropped with
+// onError so one stuck consumer cannot stall the bank. Events for one account arrive in
+// order. With no subscribers, publishing costs one volatile read and nothing is allocated.
+//
+// onNext runs on the delivery executor while a writer may hold an account lock, so
+// subscribers should hand work off (e.g. SwingUtilities.invokeLater) rather than call
+// back into BankManager synchronously.
+class BalanceEventPublisher implements Flow.Publisher<List<BalanceEvent>> {
+    private static final BalanceSubscription[] NO_SUBSCRIPTIONS = new BalanceSubscription[0];
+
+    private final Executor executor;
+    private final int bufferCapacity;
+    private final int maxBatchSize;
+    private final long maxBlockMillis;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile BalanceSubscription[] subscriptions = NO_SUBSCRIPTIONS; // copy-on-write
+
+    public BalanceEventPublisher() {
+        this(ForkJoinPool.commonPool(), 8192, 512, 100);
+    }
+
+    public BalanceEventPublisher(Executor executor, int bufferCapacity, int maxBatchSize, long maxBlockMillis) {
+        if (bufferCapacity < 1 || maxBatchSize < 1 || maxBlockMillis < 0) {
+            throw new IllegalArgumentException("bufferCapacity and maxBatchSize must be positive, maxBlockMillis non-negative");
+        }
+        this.executor = executor;
+        this.bufferCapacity = bufferCapacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBlockMillis = maxBlockMillis;
+    }
+
+    // Cheap check so the write path can skip building events nobody will see
+    public boolean hasSubscribers() {
+        return subscriptions.length != 0;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<BalanceEvent>> subscriber) {
+        Objects.requireNonNull(subscriber);
+        BalanceSubscription subscription = new BalanceSubscription(subscriber);
+        synchronized (this) {
+            BalanceSubscription[] current = subscriptions;
+            BalanceSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    public void publish(BalanceEvent.Type type, BalanceEvent.Type undoneType, int accountNumber,
+                        double amount, double balanceAfter, double availableAfter) {
+        BalanceSubscription[] current = subscriptions;
+        if (current.length == 0) {
+            return;
+        }
+        BalanceEvent event = new BalanceEvent(sequence.incrementAndGet(), type, undoneType, accountNumber,
+                amount, balanceAfter, availableAfter);
+        for (BalanceSubscription subscription : current) {
+            subscription.offer(event);
+        }
+    }
+
+    private synchronized void remove(BalanceSubscription subscription) {
+        BalanceSubscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                BalanceSubscription[] updated = new BalanceSubscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = current.length == 1 ? NO_SUBSCRIPTIONS : updated;
+                return;
+            }
+        }
+    }
+
+
+    private class BalanceSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super List<BalanceEvent>> subscriber;
+        private final ArrayDeque<BalanceEvent> buffer = new ArrayDeque<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+        private final AtomicInteger drainScheduled = new AtomicInteger();
+        private long demand;          // batches requested and not yet delivered, guarded by lock
+        private boolean cancelled;    // guarded by lock
+        private Throwable failure;    // terminal error still to be signalled, guarded by lock
+
+        BalanceSubscription(Flow.Subscriber<? super List<BalanceEvent>> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(BalanceEvent event) {
+            boolean deliverable;
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (buffer.size() >= bufferCapacity) {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(maxBlockMillis);
+                    while (buffer.size() >= bufferCapacity && !cancelled && remaining > 0) {
+                        try {
+                            remaining = notFull.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                    }
+                    if (cancelled) {
+                        return;
+                    }
+                    if (buffer.size() >= bufferCapacity) {
+                        fail(new IllegalStateException("Subscriber fell more than " + bufferCapacity + " events behind"));
+                    }
+                }
+                if (!cancelled) {
+                    buffer.add(event);
+                }
+                // With no demand the drain would find nothing to do; request() starts it later
+                deliverable = demand > 0 || failure != null;
+            } finally {
+                lock.unlock();
+            }
+            if (deliverable) {
+                scheduleDrain();
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            lock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    fail(new IllegalArgumentException("request must be positive, got " + n));
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            } finally {
+                lock.unlock();
+            }
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                cancelled = true;
+                buffer.clear();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            remove(this);
+        }
+
+        // Called with lock held: stop accepting events and signal the error from the drain loop
+        private void fail(Throwable error) {
+            cancelled = true;
+            failure = error;
+            buffer.clear();
+            notFull.signalAll();
+            remove(this);
+        }
+
+        // At most one drain runs at a time; extra calls just make it loop again
+        private void scheduleDrain() {
+            if (drainScheduled.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    drainScheduled.set(0);
+                    cancel();
+                }
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                while (true) {
+                    List<BalanceEvent> batch;
+                    Throwable error;
+                    lock.lock();
+                    try {
+                        error = failure;
+                        failure = null;
+                        if (error == null && (cancelled || demand == 0 || buffer.isEmpty())) {
+                            break;
+                        }
+                        batch = null;
+                        if (error == null) {
+                            batch = new ArrayList<>(Math.min(buffer.size(), maxBatchSize));
+                            while (batch.size() < maxBatchSize && !buffer.isEmpty()) {
+                                batch.add(buffer.poll());
+                            }
+                            demand--;
+                            notFull.signalAll();
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (error != null) {
+                        subscriber.onError(error);
+                        break;
+                    }
+                    try {
+                        subscriber.onNext(Collections.unmodifiableList(batch));
+                    } catch (Throwable t) {
+                        cancel();
+                        subscriber.onError(t);
+                        break;
+                    }
+                }
+                missed = drainScheduled.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
+
+
+// Bank Management System class (safe to share between the GUI and load-generator threads)
 class BankManager {
+    private static final long HOLD_TICK_MILLIS = 10;
+    private static final int HOLD_WHEEL_SIZE = 64;
+    private static final int HOLD_WHEEL_LEVELS = 4; // 64^4 ticks of 10 ms covers about 46 hours
+
     private List<Account> accounts;
+    private final Map<Long, AuthorizationHold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong nextHoldId = new AtomicLong(1);
+    private final TimingWheel holdTimer = new TimingWheel(HOLD_TICK_MILLIS, HOLD_WHEEL_SIZE, HOLD_WHEEL_LEVELS);
+    private final BalanceEventPublisher events = new BalanceEventPublisher();
+    private Thread holdTimerThread;
 
     public BankManager() {
         accounts = new ArrayList<>();
     }
 
-    public void addAccount(int accountNumber, String name, double initialDeposit) {
-        accounts.add(new Account(accountNumber, name, initialDeposit));
+    // Events are published outside the manager lock: a full subscriber buffer can block the
+    // writer, and that should hold up only this account, not every lookup. The account lock
+    // is taken first so no deposit on the new account can be published before its add.
+    public Account addAccount(int accountNumber, String name, double initialDeposit) {
+        Account account = new Account(accountNumber, name, initialDeposit, events);
+        synchronized (account) {
+            synchronized (this) {
+                accounts.add(account);
+            }
+            account.announce(BalanceEvent.Type.ACCOUNT_ADDED, initialDeposit);
+        }
+        return account;
     }
 
-    public Account findAccount(int accountNumber) {
+    public synchronized Account findAccount(int accountNumber) {
         for (Account account : accounts) {
             if (account.getAccountNumber() == accountNumber) {
                 return account;
@@ -102,17 +1098,115 @@ class BankManager {
         return null;
     }
 
-    public List<Account> getAllAccounts() {
-        return accounts;
+    public synchronized List<Account> getAllAccounts() {
+        return new ArrayList<>(accounts);
     }
 
     public boolean deleteAccount(int accountNumber) {
-        Account account = findAccount(accountNumber);
-        if (account != null) {
+        Account account;
+        synchronized (this) {
+            account = findAccount(accountNumber);
+            if (account == null) {
+                return false;
+            }
             accounts.remove(account);
+        }
+        synchronized (account) {
+            // Release pending holds and close the account so nothing settles against it later
+            for (AuthorizationHold hold : account.getPendingHolds()) {
+                settleHold(hold, AuthorizationHold.State.RELEASED);
+            }
+            account.close();
+            account.getTransactions().discard();
+            account.announce(BalanceEvent.Type.ACCOUNT_DELETED, 0);
+        }
+        return true;
+    }
+
+    // Change-data-capture feed of every account mutation, delivered in batches
+    public void subscribe(Flow.Subscriber<? super List<BalanceEvent>> subscriber) {
+        events.subscribe(subscriber);
+    }
+
+    // Reserve funds on an account; returns null if the account is missing or lacks available funds.
+    // Uncaptured holds are released automatically once timeoutMillis has passed.
+    public AuthorizationHold placeHold(int accountNumber, double amount, long timeoutMillis) {
+        if (!(amount > 0) || timeoutMillis < 0) {
+            throw new IllegalArgumentException("Hold amount must be positive and timeout non-negative");
+        }
+        Account account = findAccount(accountNumber);
+        if (account == null) {
+            return null;
+        }
+        AuthorizationHold hold = new AuthorizationHold(nextHoldId.getAndIncrement(), account, amount);
+        // Under the account lock nothing can settle the hold (settleHold takes the same lock)
+        // until its timeout is armed and it is in the map, and a concurrent delete is seen here
+        synchronized (account) {
+            if (!account.reserve(hold)) {
+                return null;
+            }
+            hold.expiry = holdTimer.schedule(() -> settleHold(hold, AuthorizationHold.State.EXPIRED), timeoutMillis);
+            holds.put(hold.getHoldId(), hold);
+        }
+        startHoldTimer();
+        return hold;
+    }
+
+    public AuthorizationHold findHold(long holdId) {
+        return holds.get(holdId);
+    }
+
+    public boolean captureHold(long holdId) {
+        AuthorizationHold hold = holds.get(holdId);
+        return hold != null && settleHold(hold, AuthorizationHold.State.CAPTURED);
+    }
+
+    public boolean releaseHold(long holdId) {
+        AuthorizationHold hold = holds.get(holdId);
+        return hold != null && settleHold(hold, AuthorizationHold.State.RELEASED);
+    }
+
+    public int getPendingHoldCount() {
+        return holds.size();
+    }
+
+    // Fails once the account has been deleted: deleteAccount releases its holds first
+    private boolean settleHold(AuthorizationHold hold, AuthorizationHold.State outcome) {
+        Account account = hold.getAccount();
+        synchronized (account) {
+            if (account.isClosed() || !hold.settle(outcome)) {
+                return false;
+            }
+            holds.remove(hold.getHoldId());
+            if (outcome != AuthorizationHold.State.EXPIRED) {
+                holdTimer.cancel(hold.expiry);
+            }
+            if (outcome == AuthorizationHold.State.CAPTURED) {
+                account.captureReserved(hold);
+            } else {
+                account.releaseReserved(hold, outcome == AuthorizationHold.State.EXPIRED);
+            }
             return true;
         }
-        return false;
+    }
+
+    // One daemon thread ticks the wheel, started on the first hold
+    private synchronized void startHoldTimer() {
+        if (holdTimerThread != null) {
+            return;
+        }
+        holdTimerThread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(HOLD_TICK_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                holdTimer.advanceClock();
+            }
+        }, "hold-expiry");
+        holdTimerThread.setDaemon(true);
+        holdTimerThread.start();
     }
 }
 
@@ -137,6 +1231,8 @@ public class BankingSystemGUI extends JFrame {
     @SuppressWarnings("unused")
     private final Color BUTTON_HOVER = ACCENT_BLUE.darker();         // Buttons hover
 
+    private static final int HISTORY_PAGE_SIZE = 50;                 // Transactions per history page
+
     public BankingSystemGUI() {
         bankManager = new BankManager();
         initializeGUI();
@@ -291,7 +1387,7 @@ public class BankingSystemGUI extends JFrame {
         titleLabel.setForeground(TEXT_LIGHT);
         headerPanel.add(titleLabel);
 
-        String[] columnNames = {"Account Number", "Account Holder", "Balance ($)"};
+        String[] columnNames = {"Account Number", "Account Holder", "Balance ($)", "Available ($)"};
         DefaultTableModel tableModel = new DefaultTableModel(columnNames, 0);
         JTable table = new JTable(tableModel);
         table.setFont(new Font("Arial", Font.PLAIN, 14));
@@ -311,16 +1407,42 @@ public class BankingSystemGUI extends JFrame {
         JButton refreshButton = createStyledButton("Refresh", SUCCESS_GREEN);
         JButton backButton = createStyledButton("Back to Menu", BUTTON_BG);
 
-        refreshButton.addActionListener(e -> {
+        Runnable refreshTable = () -> {
             tableModel.setRowCount(0);
             for (Account account : bankManager.getAllAccounts()) {
                 Object[] row = {
                     account.getAccountNumber(),
                     account.getName(),
-                    String.format("%.2f", account.getBalance())
+                    String.format("%.2f", account.getBalance()),
+                    String.format("%.2f", account.getAvailableBalance())
                 };
                 tableModel.addRow(row);
             }
+        };
+        refreshButton.addActionListener(e -> refreshTable.run());
+
+        // Refresh whenever an account changes (holds included, for the Available column);
+        // one batch at a time, so a burst of changes collapses into a few refreshes
+        bankManager.subscribe(new Flow.Subscriber<List<BalanceEvent>>() {
+            private Flow.Subscription subscription;
+
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+            public void onNext(List<BalanceEvent> batch) {
+                // Ask for the next batch first: the refresh may wait on an account lock held
+                // by a writer that is itself waiting for this subscriber's buffer to drain
+                SwingUtilities.invokeLater(() -> {
+                    subscription.request(1);
+                    refreshTable.run();
+                });
+            }
+            public void onError(Throwable error) {
+                System.err.println("Account table stopped receiving updates: " + error.getMessage());
+            }
+            public void onComplete() {
+            }
         });
 
         backButton.addActionListener(e -> cardLayout.show(mainPanel, "MainMenu"));
@@ -484,6 +1606,21 @@ public class BankingSystemGUI extends JFrame {
         scrollPane.setBorder(new EmptyBorder(10, 20, 10, 20));
         scrollPane.getViewport().setBackground(SECONDARY_DARK);
 
+        // Older history may live in spilled segments, so it is shown a page at a time
+        JButton moreButton = createStyledButton("Show More", SUCCESS_GREEN);
+        moreButton.setEnabled(false);
+        final Account[] shownAccount = new Account[1];
+        final int[] shownCount = {0};
+        Runnable showNextPage = () -> {
+            TransactionHistory transactions = shownAccount[0].getTransactions();
+            for (Transaction transaction : transactions.getRecent(shownCount[0], HISTORY_PAGE_SIZE)) {
+                listModel.addElement(transaction.toString());
+                shownCount[0]++;
+            }
+            moreButton.setEnabled(shownCount[0] < transactions.size());
+        };
+        moreButton.addActionListener(e -> showNextPage.run());
+
         viewButton.addActionListener(e -> {
             try {
                 int accountNumber = Integer.parseInt(accountNumberField.getText());
@@ -500,14 +1637,13 @@ public class BankingSystemGUI extends JFrame {
                 listModel.addElement("Current Balance: $" + String.format("%.2f", account.getBalance()));
                 listModel.addElement("-------------------------------------------");
 
-                Stack<Transaction> transactions = account.getTransactions();
-                if (transactions.isEmpty()) {
+                shownAccount[0] = account;
+                shownCount[0] = 0;
+                if (account.getTransactions().isEmpty()) {
                     listModel.addElement("No transactions found.");
+                    moreButton.setEnabled(false);
                 } else {
-                    for (int i = transactions.size() - 1; i >= 0; i--) {
-                        Transaction transaction = transactions.get(i);
-                        listModel.addElement(transaction.toString());
-                    }
+                    showNextPage.run();
                 }
 
             } catch (NumberFormatException ex) {
@@ -519,6 +1655,7 @@ public class BankingSystemGUI extends JFrame {
         bottomPanel.setBackground(PRIMARY_DARK);
         JButton backButton = createStyledButton("Back to Menu", BUTTON_BG);
         backButton.addActionListener(e -> cardLayout.show(mainPanel, "MainMenu"));
+        bottomPanel.add(moreButton);
         bottomPanel.add(backButton);
 
         panel.add(headerPanel, BorderLayout.NORTH);
@@ -557,7 +1694,7 @@ public class BankingSystemGUI extends JFrame {
                             "Success", JOptionPane.INFORMATION_MESSAGE);
                     accountNumberField.setText("");
                 } else {
-                    showMessage("Nothing to undo (initial deposit cannot be undone).", "Error", JOptionPane.ERROR_MESSAGE);
+                    showMessage("Nothing to undo (initial deposit cannot be undone,\nand a deposit covering pending holds must stay).", "Error", JOptionPane.ERROR_MESSAGE);
                 }
 
             } catch (NumberFormatException ex) {